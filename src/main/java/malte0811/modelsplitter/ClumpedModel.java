@@ -1,43 +1,88 @@
 package malte0811.modelsplitter;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import malte0811.modelsplitter.math.HorizontalTransform;
 import malte0811.modelsplitter.math.ModelSplitterVec3i;
 import malte0811.modelsplitter.math.Vec3d;
 import malte0811.modelsplitter.model.OBJModel;
+import malte0811.modelsplitter.util.PackedCellMap;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
 public class ClumpedModel<Texture> {
-    private final Map<ModelSplitterVec3i, OBJModel<Texture>> clumpedParts;
+    private final Long2ObjectMap<OBJModel<Texture>> clumpedParts;
+    private final Map<ModelSplitterVec3i, OBJModel<Texture>> clumpedPartView;
 
     public ClumpedModel(SplitModel<Texture> splitModel, Set<ModelSplitterVec3i> parts) {
-        Preconditions.checkArgument(!parts.isEmpty());
-        Map<ModelSplitterVec3i, OBJModel<Texture>> clumpedParts = new HashMap<>();
-        for (Map.Entry<ModelSplitterVec3i, OBJModel<Texture>> splitPart : splitModel.getParts().entrySet()) {
-            final ModelSplitterVec3i originalTarget = splitPart.getKey();
-            ModelSplitterVec3i target = originalTarget;
+        this(splitModel, toPacked(parts));
+    }
+
+    public ClumpedModel(SplitModel<Texture> splitModel, LongSet parts) {
+        this(splitModel, parts.toLongArray());
+    }
+
+    // If several candidates are equally close, the first one in the order given by the caller is used
+    private ClumpedModel(SplitModel<Texture> splitModel, long[] candidates) {
+        Preconditions.checkArgument(candidates.length > 0);
+        final LongSet parts = new LongOpenHashSet(candidates);
+        Long2ObjectMap<OBJModel<Texture>> clumpedParts = new Long2ObjectOpenHashMap<>();
+        for (Long2ObjectMap.Entry<OBJModel<Texture>> splitPart : splitModel.getPackedParts().long2ObjectEntrySet()) {
+            final long originalTarget = splitPart.getLongKey();
+            long target = originalTarget;
             OBJModel<Texture> translatedModel = splitPart.getValue();
             if (!parts.contains(target)) {
                 int optDist = Integer.MAX_VALUE;
-                for (ModelSplitterVec3i candidate : parts) {
-                    int currentDist = candidate.distanceSq(originalTarget);
+                for (long candidate : candidates) {
+                    int currentDist = ModelSplitterVec3i.distanceSq(candidate, originalTarget);
                     if (currentDist < optDist) {
                         optDist = currentDist;
                         target = candidate;
                     }
                 }
-                ModelSplitterVec3i translatedBy = originalTarget.subtract(target);
-                translatedModel = translatedModel.translate(new Vec3d(translatedBy));
+                translatedModel = translatedModel.translate(new Vec3d(
+                        ModelSplitterVec3i.unpackX(originalTarget) - ModelSplitterVec3i.unpackX(target),
+                        ModelSplitterVec3i.unpackY(originalTarget) - ModelSplitterVec3i.unpackY(target),
+                        ModelSplitterVec3i.unpackZ(originalTarget) - ModelSplitterVec3i.unpackZ(target)
+                ));
             }
             clumpedParts.merge(target, translatedModel, OBJModel::union);
         }
-        this.clumpedParts = ImmutableMap.copyOf(clumpedParts);
+        this.clumpedParts = Long2ObjectMaps.unmodifiable(clumpedParts);
+        this.clumpedPartView = new PackedCellMap<>(this.clumpedParts);
+    }
+
+    private ClumpedModel(Long2ObjectMap<OBJModel<Texture>> clumpedParts) {
+        this.clumpedParts = Long2ObjectMaps.unmodifiable(clumpedParts);
+        this.clumpedPartView = new PackedCellMap<>(this.clumpedParts);
+    }
+
+    // Equivalent to clumping the transformed split model into the transformed parts
+    public ClumpedModel<Texture> transform(HorizontalTransform transform) {
+        return new ClumpedModel<>(SplitModel.transformParts(
+                clumpedParts, transform, new Long2ObjectOpenHashMap<>(clumpedParts.size())
+        ));
+    }
+
+    private static long[] toPacked(Set<ModelSplitterVec3i> parts) {
+        long[] packed = new long[parts.size()];
+        int i = 0;
+        for (ModelSplitterVec3i part : parts) {
+            packed[i++] = part.pack();
+        }
+        return packed;
     }
 
     public Map<ModelSplitterVec3i, OBJModel<Texture>> getClumpedParts() {
+        return clumpedPartView;
+    }
+
+    public Long2ObjectMap<OBJModel<Texture>> getPackedClumpedParts() {
         return clumpedParts;
     }
 }
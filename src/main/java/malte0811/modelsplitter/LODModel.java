@@ -0,0 +1,67 @@
+package malte0811.modelsplitter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import malte0811.modelsplitter.math.ModelSplitterVec3i;
+import malte0811.modelsplitter.model.EdgeCollapseDecimator;
+import malte0811.modelsplitter.model.OBJModel;
+import malte0811.modelsplitter.util.PackedCellMap;
+
+import java.util.List;
+import java.util.Map;
+
+// Level 0 is the full-detail split model, each further level is simplified from the previous one. Vertices on the
+// cell boundaries are never moved, so neighboring cells stay crack-free at any combination of levels. If the split model
+// has a memory budget, each simplified level spills to disk under the same budget.
+public class LODModel<Texture> {
+    private final List<Long2ObjectMap<OBJModel<Texture>>> levels;
+
+    /**
+     * @param faceBudgets Maximum number of faces per cell for each simplified level, in non-increasing order
+     */
+    public LODModel(SplitModel<Texture> splitModel, int... faceBudgets) {
+        EdgeCollapseDecimator decimator = new EdgeCollapseDecimator(EdgeCollapseDecimator.unitCellBoundary());
+        ImmutableList.Builder<Long2ObjectMap<OBJModel<Texture>>> levels = ImmutableList.builder();
+        Long2ObjectMap<OBJModel<Texture>> previousLevel = splitModel.getPackedParts();
+        levels.add(previousLevel);
+        for (int i = 0; i < faceBudgets.length; ++i) {
+            Preconditions.checkArgument(faceBudgets[i] >= 0);
+            Preconditions.checkArgument(i == 0 || faceBudgets[i] <= faceBudgets[i - 1]);
+            Long2ObjectMap<OBJModel<Texture>> level = splitModel.newPartMap();
+            for (Long2ObjectMap.Entry<OBJModel<Texture>> cell : previousLevel.long2ObjectEntrySet()) {
+                level.put(cell.getLongKey(), decimator.decimate(cell.getValue(), faceBudgets[i]));
+            }
+            previousLevel = Long2ObjectMaps.unmodifiable(level);
+            levels.add(previousLevel);
+        }
+        this.levels = levels.build();
+    }
+
+    public int getNumLevels() {
+        return levels.size();
+    }
+
+    public Map<ModelSplitterVec3i, OBJModel<Texture>> getLevel(int level) {
+        return new PackedCellMap<>(levels.get(level));
+    }
+
+    public Long2ObjectMap<OBJModel<Texture>> getPackedLevel(int level) {
+        return levels.get(level);
+    }
+
+    public List<OBJModel<Texture>> getLevels(ModelSplitterVec3i cell) {
+        if (!cell.isPackable()) {
+            return ImmutableList.of();
+        }
+        ImmutableList.Builder<OBJModel<Texture>> result = ImmutableList.builder();
+        for (Long2ObjectMap<OBJModel<Texture>> level : levels) {
+            OBJModel<Texture> cellModel = level.get(cell.pack());
+            if (cellModel != null) {
+                result.add(cellModel);
+            }
+        }
+        return result.build();
+    }
+}
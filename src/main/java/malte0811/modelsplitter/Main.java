@@ -1,13 +1,30 @@
 package malte0811.modelsplitter;
 
 import malte0811.modelsplitter.model.OBJModel;
+import malte0811.modelsplitter.server.ModelWatcher;
+import malte0811.modelsplitter.server.SplitJob;
+import malte0811.modelsplitter.server.SplitServer;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("server")) {
+            SplitServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        } else if (args.length > 2 && args[0].equals("watch")) {
+            final Path output = Path.of(args[1]);
+            List<Path> modelDirs = Arrays.stream(args, 2, args.length).map(Path::of).toList();
+            new ModelWatcher(
+                    modelDirs, output, (model, modelOutput) -> new SplitJob(model, modelOutput, null, false)
+            ).run();
+            return;
+        }
         final String name = "bucket_wheel";
         FileInputStream fis = new FileInputStream(name + ".obj.ie");
         var model = OBJModel.readFromStream(fis, f -> {
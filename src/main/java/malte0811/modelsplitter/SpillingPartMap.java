@@ -0,0 +1,178 @@
+package malte0811.modelsplitter;
+
+import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.longs.AbstractLong2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+import malte0811.modelsplitter.model.BinaryModelCodec;
+import malte0811.modelsplitter.model.OBJModel;
+import malte0811.modelsplitter.model.Polygon;
+import malte0811.modelsplitter.util.ByteBufferInputStream;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Part map that keeps finished cells in memory until their estimated size exceeds the budget, and writes the oldest
+// cells to a temporary file from then on. Spilled cells are decoded again every time they are accessed, so at most the
+// budget plus the cells currently in use are kept in memory.
+class SpillingPartMap<Texture> extends AbstractLong2ObjectMap<OBJModel<Texture>> {
+    // Never serialized, the spill file is only valid for the lifetime of the map
+    @Serial
+    private static final long serialVersionUID = 1L;
+    private static final Cleaner CLEANER = Cleaner.create();
+    // Rough heap usage of a Vertex including its vectors, and of a Polygon excluding its vertices
+    private static final long BYTES_PER_VERTEX = 160;
+    private static final long BYTES_PER_FACE = 64;
+
+    private final long memoryBudget;
+    private final BinaryModelCodec<Texture> codec = new BinaryModelCodec<>();
+    // Insertion order, cells are spilled in this order
+    private final LongList keys = new LongArrayList();
+    private final Long2ObjectMap<OBJModel<Texture>> inMemory = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<SpilledCell> spilled = new Long2ObjectOpenHashMap<>();
+    private long inMemorySize = 0;
+    private int nextToSpill = 0;
+    @Nullable
+    private FileChannel spillFile;
+    private long spillFileSize = 0;
+
+    public SpillingPartMap(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public static long estimateMemoryUsage(OBJModel<?> model) {
+        long result = 0;
+        for (Polygon<?> face : model.getFaces()) {
+            result += BYTES_PER_FACE + BYTES_PER_VERTEX * face.getPoints().size();
+        }
+        return result;
+    }
+
+    @Override
+    public OBJModel<Texture> put(long key, OBJModel<Texture> value) {
+        Preconditions.checkArgument(!containsKey(key), "Cell is already present");
+        keys.add(key);
+        inMemory.put(key, value);
+        inMemorySize += estimateMemoryUsage(value);
+        while (inMemorySize > memoryBudget && !inMemory.isEmpty()) {
+            spill(keys.getLong(nextToSpill++));
+        }
+        return null;
+    }
+
+    @Override
+    public OBJModel<Texture> get(long key) {
+        OBJModel<Texture> result = inMemory.get(key);
+        if (result == null) {
+            SpilledCell spilledCell = spilled.get(key);
+            if (spilledCell != null) {
+                result = readSpilled(spilledCell);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return inMemory.containsKey(key) || spilled.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return keys.size();
+    }
+
+    public boolean hasSpilled() {
+        return !spilled.isEmpty();
+    }
+
+    @Override
+    public ObjectSet<Entry<OBJModel<Texture>>> long2ObjectEntrySet() {
+        return new AbstractObjectSet<>() {
+            @Override
+            public ObjectIterator<Entry<OBJModel<Texture>>> iterator() {
+                LongIterator keyIterator = keys.iterator();
+                return new ObjectIterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keyIterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<OBJModel<Texture>> next() {
+                        final long key = keyIterator.nextLong();
+                        return new BasicEntry<>(key, get(key));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+    private void spill(long key) {
+        OBJModel<Texture> model = inMemory.remove(key);
+        inMemorySize -= estimateMemoryUsage(model);
+        ByteBuffer data = ByteBuffer.wrap(codec.encode(model));
+        try {
+            FileChannel file = getSpillFile();
+            spilled.put(key, new SpilledCell(spillFileSize, data.remaining()));
+            while (data.hasRemaining()) {
+                spillFileSize += file.write(data, spillFileSize);
+            }
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    private OBJModel<Texture> readSpilled(SpilledCell cell) {
+        ByteBuffer data = ByteBuffer.allocate(cell.length());
+        try {
+            FileChannel file = getSpillFile();
+            while (data.hasRemaining()) {
+                if (file.read(data, cell.offset() + data.position()) < 0) {
+                    throw new IOException("Unexpected end of spill file");
+                }
+            }
+            return codec.decode(new ByteBufferInputStream(data.flip()));
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    private FileChannel getSpillFile() throws IOException {
+        if (spillFile == null) {
+            Path path = Files.createTempFile("modelsplitter", ".cells");
+            FileChannel channel = FileChannel.open(
+                    path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE
+            );
+            CLEANER.register(this, () -> {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            });
+            spillFile = channel;
+        }
+        return spillFile;
+    }
+
+    private record SpilledCell(long offset, int length) {}
+}
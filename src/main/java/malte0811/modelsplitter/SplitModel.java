@@ -1,42 +1,112 @@
 package malte0811.modelsplitter;
 
-import com.google.common.collect.ImmutableMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import malte0811.modelsplitter.math.EpsilonMath;
 import malte0811.modelsplitter.math.EpsilonMath.Sign;
+import malte0811.modelsplitter.math.HorizontalTransform;
 import malte0811.modelsplitter.math.ModelSplitterVec3i;
 import malte0811.modelsplitter.math.Plane;
 import malte0811.modelsplitter.math.Vec3d;
+import malte0811.modelsplitter.model.AxisCoordinates;
+import malte0811.modelsplitter.model.Group;
 import malte0811.modelsplitter.model.OBJModel;
 import malte0811.modelsplitter.model.Polygon;
-import malte0811.modelsplitter.model.Vertex;
+import malte0811.modelsplitter.util.PackedCellMap;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class SplitModel<Texture> {
     private static final EpsilonMath EPS_MATH = new EpsilonMath(1e-5);
 
-    private final Map<ModelSplitterVec3i, OBJModel<Texture>> submodels;
+    private final Long2ObjectMap<OBJModel<Texture>> submodels;
+    private final Map<ModelSplitterVec3i, OBJModel<Texture>> submodelView;
+    // Negative if all parts are kept in memory
+    private final long memoryBudget;
 
     public SplitModel(OBJModel<Texture> input) {
-        ImmutableMap.Builder<ModelSplitterVec3i, OBJModel<Texture>> submodels = ImmutableMap.builder();
-        for (Int2ObjectMap.Entry<OBJModel<Texture>> xSlice : splitInPlanes(input, 0).int2ObjectEntrySet()) {
-            Int2ObjectMap<OBJModel<Texture>> columns = splitInPlanes(xSlice.getValue(), 2);
-            for (Int2ObjectMap.Entry<OBJModel<Texture>> zColumn : columns.int2ObjectEntrySet()) {
-                Int2ObjectMap<OBJModel<Texture>> dices = splitInPlanes(zColumn.getValue(), 1);
-                for (Int2ObjectMap.Entry<OBJModel<Texture>> yDice : dices.int2ObjectEntrySet()) {
+        this(split(input, new Long2ObjectOpenHashMap<>()), -1);
+    }
+
+    /**
+     * @param memoryBudget Estimated number of bytes the finished parts may use before they are moved to a temporary
+     *                     file. Parts moved to disk are transparently read back whenever they are accessed. Models
+     *                     derived from this one (by {@link #transform} or as an LOD level) use the same budget.
+     */
+    public SplitModel(OBJModel<Texture> input, long memoryBudget) {
+        this(split(input, new SpillingPartMap<>(memoryBudget)), Math.max(memoryBudget, 0));
+    }
+
+    private SplitModel(Long2ObjectMap<OBJModel<Texture>> submodels, long memoryBudget) {
+        this.submodels = Long2ObjectMaps.unmodifiable(submodels);
+        this.submodelView = new PackedCellMap<>(this.submodels);
+        this.memoryBudget = memoryBudget;
+    }
+
+    private static <Texture> Long2ObjectMap<OBJModel<Texture>> newPartMap(long memoryBudget) {
+        return memoryBudget < 0 ? new Long2ObjectOpenHashMap<>() : new SpillingPartMap<>(memoryBudget);
+    }
+
+    private static <Texture> Long2ObjectMap<OBJModel<Texture>> split(
+            OBJModel<Texture> input, Long2ObjectMap<OBJModel<Texture>> submodels
+    ) {
+        // Slices and columns are removed once they are split further, so that their geometry does not stay in memory
+        // alongside the finished (and possibly spilled) parts
+        Int2ObjectMap<OBJModel<Texture>> xSlices = splitInPlanes(input, 0);
+        for (int x : xSlices.keySet().toIntArray()) {
+            Int2ObjectMap<OBJModel<Texture>> columns = splitInPlanes(xSlices.remove(x), 2);
+            for (int z : columns.keySet().toIntArray()) {
+                Int2ObjectMap<OBJModel<Texture>> dices = splitInPlanes(columns.remove(z), 1);
+                for (int y : dices.keySet().toIntArray()) {
+                    // Translations along one axis do not affect the splits along the other axes, so all translations
+                    // (and the quadification) are done in one pass once the cell is final
                     submodels.put(
-                            new ModelSplitterVec3i(xSlice.getIntKey(), yDice.getIntKey(), zColumn.getIntKey()),
-                            yDice.getValue()
+                            ModelSplitterVec3i.pack(x, y, z),
+                            dices.remove(y).lazy().translate(new Vec3d(-x, -y, -z)).quadify().materialize()
                     );
                 }
             }
         }
-        this.submodels = submodels.build();
+        return submodels;
+    }
+
+    /**
+     * Returns the parts of this model after rotating/mirroring it about the origin. This is equivalent to, but much
+     * cheaper than, splitting the transformed input model. The only difference is that faces lying exactly on a cell
+     * border may end up in the cell on the other side of that border.
+     */
+    public SplitModel<Texture> transform(HorizontalTransform transform) {
+        return new SplitModel<>(transformParts(submodels, transform, newPartMap()), memoryBudget);
+    }
+
+    // Empty part map using the same memory budget as this model
+    Long2ObjectMap<OBJModel<Texture>> newPartMap() {
+        return newPartMap(memoryBudget);
+    }
+
+    static <Texture> Long2ObjectMap<OBJModel<Texture>> transformParts(
+            Long2ObjectMap<OBJModel<Texture>> parts,
+            HorizontalTransform transform,
+            Long2ObjectMap<OBJModel<Texture>> result
+    ) {
+        for (Long2ObjectMap.Entry<OBJModel<Texture>> part : parts.long2ObjectEntrySet()) {
+            result.put(transform.apply(part.getLongKey()), part.getValue().transform(transform));
+        }
+        return result;
     }
 
     public Map<ModelSplitterVec3i, OBJModel<Texture>> getParts() {
+        return submodelView;
+    }
+
+    public Long2ObjectMap<OBJModel<Texture>> getPackedParts() {
         return submodels;
     }
 
@@ -44,47 +114,81 @@ public class SplitModel<Texture> {
         if (input.isEmpty()) {
             return new Int2ObjectOpenHashMap<>();
         }
+        Map<String, AxisCoordinates> coordsByGroup = new HashMap<>();
         double min = Double.POSITIVE_INFINITY;
         double max = Double.NEGATIVE_INFINITY;
-        for (Polygon<Texture> f : input.getFaces()) {
-            for (Vertex v : f.getPoints()) {
-                double pos = v.position().get(axis);
-                min = Math.min(min, pos);
-                max = Math.max(max, pos);
-            }
+        for (Map.Entry<String, Group<Texture>> group : input.getFacesByGroup().entrySet()) {
+            AxisCoordinates coords = group.getValue().axisCoordinates(axis);
+            coordsByGroup.put(group.getKey(), coords);
+            min = Math.min(min, coords.min());
+            max = Math.max(max, coords.max());
         }
         final int firstBorder = EPS_MATH.ceil(min);
         final int lastBorder = EPS_MATH.floor(max);
+        // Faces that are not cut by any plane can be sorted into their section directly, only the remaining faces
+        // need to go through the actual splitting
+        Int2ObjectMap<Map<String, List<Polygon<Texture>>>> unsplitFaces = new Int2ObjectOpenHashMap<>();
+        Map<String, List<Polygon<Texture>>> facesToSplit = new HashMap<>();
+        for (Map.Entry<String, Group<Texture>> group : input.getFacesByGroup().entrySet()) {
+            final List<Polygon<Texture>> faces = group.getValue().getFaces();
+            final int[] sections = coordsByGroup.get(group.getKey()).classify(EPS_MATH, firstBorder, lastBorder);
+            for (int i = 0; i < sections.length; ++i) {
+                final Map<String, List<Polygon<Texture>>> target;
+                if (sections[i] == AxisCoordinates.CROSSES_BORDER) {
+                    target = facesToSplit;
+                } else {
+                    target = unsplitFaces.computeIfAbsent(sections[i], s -> new HashMap<>());
+                }
+                target.computeIfAbsent(group.getKey(), s -> new ArrayList<>()).add(faces.get(i));
+            }
+        }
         Int2ObjectMap<OBJModel<Texture>> modelPerSection = new Int2ObjectOpenHashMap<>();
         double[] vecData = new double[3];
         vecData[axis] = 1;
         final Vec3d normal = new Vec3d(vecData);
+        input = toModel(facesToSplit);
         for (int borderPos = firstBorder; borderPos <= lastBorder; ++borderPos) {
+            if (input == null) {
+                putModel(modelPerSection, borderPos - 1, null, unsplitFaces);
+                continue;
+            }
             Plane cut = new Plane(normal, borderPos);
             Map<EpsilonMath.Sign, OBJModel<Texture>> splitModel = input.split(cut);
             OBJModel<Texture> sectionModel = splitModel.get(EpsilonMath.Sign.NEGATIVE);
-            putModel(modelPerSection, axis, borderPos - 1, sectionModel);
+            putModel(modelPerSection, borderPos - 1, sectionModel, unsplitFaces);
             input = OBJModel.union(
                     splitModel.get(EpsilonMath.Sign.POSITIVE),
                     splitModel.get(Sign.ZERO)
             );
+            if (input.isEmpty()) {
+                input = null;
+            }
         }
-        putModel(modelPerSection, axis, lastBorder, input);
+        putModel(modelPerSection, lastBorder, input, unsplitFaces);
         return modelPerSection;
     }
 
+    @Nullable
+    private static <Texture> OBJModel<Texture> toModel(@Nullable Map<String, List<Polygon<Texture>>> faces) {
+        if (faces == null || faces.isEmpty()) {
+            return null;
+        }
+        Map<String, Group<Texture>> groups = new HashMap<>();
+        for (Map.Entry<String, List<Polygon<Texture>>> group : faces.entrySet()) {
+            groups.put(group.getKey(), new Group<>(group.getValue()));
+        }
+        return new OBJModel<>(groups);
+    }
+
     private static <Texture> void putModel(
             Int2ObjectMap<OBJModel<Texture>> sectionModels,
-            int axis,
             int section,
-            OBJModel<Texture> baseSectionModel
+            @Nullable OBJModel<Texture> splitSectionModel,
+            Int2ObjectMap<Map<String, List<Polygon<Texture>>>> unsplitFaces
     ) {
-        if (baseSectionModel != null && !baseSectionModel.isEmpty()) {
-            sectionModels.put(
-                    section,
-                    baseSectionModel.translate(axis, -section)
-                            .quadify()
-            );
+        OBJModel<Texture> sectionModel = OBJModel.union(toModel(unsplitFaces.get(section)), splitSectionModel);
+        if (!sectionModel.isEmpty()) {
+            sectionModels.put(section, sectionModel);
         }
     }
 }
@@ -0,0 +1,154 @@
+package malte0811.modelsplitter.archive;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import malte0811.modelsplitter.ClumpedModel;
+import malte0811.modelsplitter.SplitModel;
+import malte0811.modelsplitter.math.ModelSplitterVec3i;
+import malte0811.modelsplitter.model.MaterialLibrary.OBJMaterial;
+import malte0811.modelsplitter.model.OBJModel;
+import malte0811.modelsplitter.util.ByteBufferInputStream;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Layout: magic, version, cell count, then one (packed cell, offset, length) entry per cell, followed by the OBJ
+// data of all cells. Offsets are relative to the start of the file.
+public class CellArchive {
+    private static final int MAGIC = 0x424d5341; // "BMSA"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int ENTRY_SIZE = 2 * Long.BYTES + Integer.BYTES;
+
+    private final ByteBuffer data;
+    private final Long2ObjectMap<Entry> entries;
+
+    private CellArchive(ByteBuffer data, Long2ObjectMap<Entry> entries) {
+        this.data = data;
+        this.entries = entries;
+    }
+
+    public static void write(Path target, SplitModel<?> model) throws IOException {
+        write(target, model.getPackedParts());
+    }
+
+    public static void write(Path target, ClumpedModel<?> model) throws IOException {
+        write(target, model.getPackedClumpedParts());
+    }
+
+    public static void write(Path target, Long2ObjectMap<? extends OBJModel<?>> cells) throws IOException {
+        long[] keys = cells.keySet().toLongArray();
+        LongArrays.quickSort(keys);
+        ByteBuffer[] buffers = new ByteBuffer[keys.length + 1];
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + keys.length * ENTRY_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(keys.length);
+        long offset = header.capacity();
+        for (int i = 0; i < keys.length; ++i) {
+            ByteArrayOutputStream cellData = new ByteArrayOutputStream();
+            cells.get(keys[i]).write(cellData);
+            buffers[i + 1] = ByteBuffer.wrap(cellData.toByteArray());
+            header.putLong(keys[i]).putLong(offset).putInt(cellData.size());
+            offset += cellData.size();
+        }
+        buffers[0] = header.flip();
+        // Readers may have the old archive mapped, so it must be replaced rather than overwritten
+        final Path absoluteTarget = target.toAbsolutePath();
+        final Path tempFile = Files.createTempFile(
+                absoluteTarget.getParent(), absoluteTarget.getFileName().toString(), ".tmp"
+        );
+        try {
+            try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                long remaining = offset;
+                while (remaining > 0) {
+                    remaining -= out.write(buffers);
+                }
+            }
+            Files.move(tempFile, absoluteTarget, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException x) {
+            Files.deleteIfExists(tempFile);
+            throw x;
+        }
+    }
+
+    public static CellArchive open(Path source) throws IOException {
+        final ByteBuffer data;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            checkValid(in.size() <= Integer.MAX_VALUE, source, "too large to map");
+            data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+        checkValid(data.capacity() >= HEADER_SIZE && data.getInt(0) == MAGIC, source, "not a cell archive");
+        checkValid(data.getInt(Integer.BYTES) == VERSION, source, "unsupported version");
+        final int numCells = data.getInt(2 * Integer.BYTES);
+        checkValid(
+                numCells >= 0 && HEADER_SIZE + (long) numCells * ENTRY_SIZE <= data.capacity(),
+                source,
+                "truncated index"
+        );
+        Long2ObjectMap<Entry> entries = new Long2ObjectOpenHashMap<>(numCells);
+        for (int i = 0; i < numCells; ++i) {
+            final int entryStart = HEADER_SIZE + i * ENTRY_SIZE;
+            final long offset = data.getLong(entryStart + Long.BYTES);
+            final int length = data.getInt(entryStart + 2 * Long.BYTES);
+            checkValid(
+                    offset >= 0 && length >= 0 && offset + length <= data.capacity(),
+                    source,
+                    "invalid entry " + i
+            );
+            entries.put(data.getLong(entryStart), new Entry((int) offset, length));
+        }
+        return new CellArchive(data, entries);
+    }
+
+    private static void checkValid(boolean condition, Path source, String problem) throws IOException {
+        if (!condition) {
+            throw new IOException("Invalid cell archive " + source + ": " + problem);
+        }
+    }
+
+    public LongSet getPackedCells() {
+        return LongSets.unmodifiable(entries.keySet());
+    }
+
+    public boolean contains(ModelSplitterVec3i cell) {
+        return cell.isPackable() && entries.containsKey(cell.pack());
+    }
+
+    @Nullable
+    public ByteBuffer getCellData(ModelSplitterVec3i cell) {
+        return cell.isPackable() ? getCellData(cell.pack()) : null;
+    }
+
+    @Nullable
+    public ByteBuffer getCellData(long packedCell) {
+        Entry entry = entries.get(packedCell);
+        if (entry == null) {
+            return null;
+        }
+        return data.slice(entry.offset(), entry.length()).asReadOnlyBuffer();
+    }
+
+    // The cell data is OBJModel.write output, which only contains geometry and UVs. All faces of the result have a
+    // null material.
+    @Nullable
+    public OBJModel<OBJMaterial> readCell(ModelSplitterVec3i cell) {
+        ByteBuffer cellData = getCellData(cell);
+        if (cellData == null) {
+            return null;
+        }
+        return OBJModel.readWithMaterials(new ByteBufferInputStream(cellData), name -> {
+            throw new IllegalStateException("Unexpected material library in cell archive: " + name);
+        });
+    }
+
+    private record Entry(int offset, int length) {}
+}
@@ -0,0 +1,74 @@
+package malte0811.modelsplitter.math;
+
+import com.google.common.base.Preconditions;
+
+// Mirroring along the X axis (if enabled) followed by quarterTurns rotations by 90 degrees about the Y axis, where one
+// quarter turn maps +X to -Z and +Z to +X. These transformations map unit cells onto unit cells.
+public record HorizontalTransform(int quarterTurns, boolean mirrored) {
+    public static final HorizontalTransform IDENTITY = new HorizontalTransform(0, false);
+
+    public HorizontalTransform {
+        Preconditions.checkArgument(quarterTurns >= 0 && quarterTurns < 4);
+    }
+
+    public static HorizontalTransform rotation(int quarterTurns) {
+        return new HorizontalTransform(Math.floorMod(quarterTurns, 4), false);
+    }
+
+    public boolean flipsWinding() {
+        return mirrored;
+    }
+
+    public Vec3d apply(Vec3d vec) {
+        final double x = mirrored ? -vec.x() : vec.x();
+        final double z = vec.z();
+        return switch (quarterTurns) {
+            case 0 -> new Vec3d(x, vec.y(), z);
+            case 1 -> new Vec3d(z, vec.y(), -x);
+            case 2 -> new Vec3d(-x, vec.y(), -z);
+            case 3 -> new Vec3d(-z, vec.y(), x);
+            default -> throw new IllegalStateException("Unexpected rotation: " + quarterTurns);
+        };
+    }
+
+    // Positions relative to a cell, the result is relative to the cell the original cell is mapped to
+    public Vec3d applyInCell(Vec3d cellRelative) {
+        final Vec3d center = new Vec3d(0.5, 0.5, 0.5);
+        return apply(cellRelative.subtract(center)).add(center);
+    }
+
+    public ModelSplitterVec3i apply(ModelSplitterVec3i cell) {
+        return new ModelSplitterVec3i(apply(cell.pack()));
+    }
+
+    public long apply(long packedCell) {
+        // Transform the (doubled) cell center, this avoids special cases for the axes mapped to negative axes
+        final int doubleX = 2 * ModelSplitterVec3i.unpackX(packedCell) + 1;
+        final int doubleZ = 2 * ModelSplitterVec3i.unpackZ(packedCell) + 1;
+        final int x = mirrored ? -doubleX : doubleX;
+        final int newDoubleX;
+        final int newDoubleZ;
+        switch (quarterTurns) {
+            case 0 -> {
+                newDoubleX = x;
+                newDoubleZ = doubleZ;
+            }
+            case 1 -> {
+                newDoubleX = doubleZ;
+                newDoubleZ = -x;
+            }
+            case 2 -> {
+                newDoubleX = -x;
+                newDoubleZ = -doubleZ;
+            }
+            case 3 -> {
+                newDoubleX = -doubleZ;
+                newDoubleZ = x;
+            }
+            default -> throw new IllegalStateException("Unexpected rotation: " + quarterTurns);
+        }
+        return ModelSplitterVec3i.pack(
+                (newDoubleX - 1) >> 1, ModelSplitterVec3i.unpackY(packedCell), (newDoubleZ - 1) >> 1
+        );
+    }
+}
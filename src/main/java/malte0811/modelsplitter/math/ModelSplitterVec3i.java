@@ -1,6 +1,17 @@
 package malte0811.modelsplitter.math;
 
+import com.google.common.base.Preconditions;
+
 public record ModelSplitterVec3i(int x, int y, int z) {
+    private static final int BITS_PER_AXIS = 21;
+    private static final long AXIS_MASK = (1L << BITS_PER_AXIS) - 1;
+    public static final int MIN_PACKABLE = -(1 << (BITS_PER_AXIS - 1));
+    public static final int MAX_PACKABLE = (1 << (BITS_PER_AXIS - 1)) - 1;
+
+    public ModelSplitterVec3i(long packed) {
+        this(unpackX(packed), unpackY(packed), unpackZ(packed));
+    }
+
     public int distanceSq(ModelSplitterVec3i other) {
         return this.subtract(other).lengthSq();
     }
@@ -16,4 +27,43 @@ public record ModelSplitterVec3i(int x, int y, int z) {
     public int lengthSq() {
         return x * x + y * y + z * z;
     }
+
+    public boolean isPackable() {
+        return isPackable(x) && isPackable(y) && isPackable(z);
+    }
+
+    public long pack() {
+        return pack(x, y, z);
+    }
+
+    public static long pack(int x, int y, int z) {
+        Preconditions.checkArgument(
+                isPackable(x) && isPackable(y) && isPackable(z),
+                "Cell (%s, %s, %s) is outside the packable range [%s, %s]", x, y, z, MIN_PACKABLE, MAX_PACKABLE
+        );
+        return (x & AXIS_MASK) << (2 * BITS_PER_AXIS) | (y & AXIS_MASK) << BITS_PER_AXIS | (z & AXIS_MASK);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed << (64 - 3 * BITS_PER_AXIS) >> (64 - BITS_PER_AXIS));
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << (64 - 2 * BITS_PER_AXIS) >> (64 - BITS_PER_AXIS));
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << (64 - BITS_PER_AXIS) >> (64 - BITS_PER_AXIS));
+    }
+
+    public static int distanceSq(long packedA, long packedB) {
+        final int dX = unpackX(packedA) - unpackX(packedB);
+        final int dY = unpackY(packedA) - unpackY(packedB);
+        final int dZ = unpackZ(packedA) - unpackZ(packedB);
+        return dX * dX + dY * dY + dZ * dZ;
+    }
+
+    private static boolean isPackable(int coord) {
+        return coord >= MIN_PACKABLE && coord <= MAX_PACKABLE;
+    }
 }
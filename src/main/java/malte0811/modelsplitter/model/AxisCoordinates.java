@@ -0,0 +1,86 @@
+package malte0811.modelsplitter.model;
+
+import malte0811.modelsplitter.math.EpsilonMath;
+
+import java.util.List;
+
+// Coordinates of all vertices of a list of faces along a single axis, flattened into one array. faceStarts has one
+// entry more than there are faces, so the vertices of face i are at [faceStarts[i], faceStarts[i + 1]).
+public record AxisCoordinates(double[] coords, int[] faceStarts) {
+    public static final int CROSSES_BORDER = Integer.MIN_VALUE;
+
+    public static AxisCoordinates of(List<? extends Polygon<?>> faces, int axis) {
+        int[] faceStarts = new int[faces.size() + 1];
+        for (int i = 0; i < faces.size(); ++i) {
+            faceStarts[i + 1] = faceStarts[i] + faces.get(i).getPoints().size();
+        }
+        double[] coords = new double[faceStarts[faces.size()]];
+        int index = 0;
+        for (Polygon<?> face : faces) {
+            for (Vertex v : face.getPoints()) {
+                coords[index++] = v.position().get(axis);
+            }
+        }
+        return new AxisCoordinates(coords, faceStarts);
+    }
+
+    public int numFaces() {
+        return faceStarts.length - 1;
+    }
+
+    public double min() {
+        return min(0, coords.length);
+    }
+
+    public double max() {
+        return max(0, coords.length);
+    }
+
+    /**
+     * Computes the section each face would end up in when cutting along all integer planes from firstBorder to
+     * lastBorder (inclusive), using the same sign rules as Polygon.splitAlong. Faces that are cut by at least one of
+     * the planes are marked with CROSSES_BORDER instead. This is plain scalar code; the speedup over cutting every face
+     * comes from callers skipping Polygon.splitAlong for all faces that are not marked.
+     */
+    public int[] classify(EpsilonMath epsMath, int firstBorder, int lastBorder) {
+        final double epsilon = epsMath.epsilon();
+        int[] sections = new int[numFaces()];
+        for (int face = 0; face < sections.length; ++face) {
+            final double faceMin = min(faceStarts[face], faceStarts[face + 1]);
+            final double faceMax = max(faceStarts[face], faceStarts[face + 1]);
+            // First border with a vertex on the negative side. The loops correct for rounding differences between
+            // EpsilonMath.floor and the per-vertex sign test.
+            int border = Math.max(firstBorder, epsMath.floor(faceMin) + 1);
+            while (border > firstBorder && faceMin - (border - 1) < -epsilon) {
+                --border;
+            }
+            while (border <= lastBorder && !(faceMin - border < -epsilon)) {
+                ++border;
+            }
+            if (border > lastBorder) {
+                sections[face] = lastBorder;
+            } else if (faceMax - border > epsilon) {
+                sections[face] = CROSSES_BORDER;
+            } else {
+                sections[face] = border - 1;
+            }
+        }
+        return sections;
+    }
+
+    private double min(int start, int end) {
+        double result = Double.POSITIVE_INFINITY;
+        for (int i = start; i < end; ++i) {
+            result = Math.min(result, coords[i]);
+        }
+        return result;
+    }
+
+    private double max(int start, int end) {
+        double result = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; ++i) {
+            result = Math.max(result, coords[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package malte0811.modelsplitter.model;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import malte0811.modelsplitter.math.Vec3d;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Lossless binary encoding of models. Textures are not serialized, instead they are replaced by an index into a table
+// kept by the codec, so data encoded by one codec instance can only be decoded by the same instance.
+public class BinaryModelCodec<Texture> {
+    private final List<Texture> textures = new ArrayList<>();
+    private final Object2IntMap<Texture> textureIds = new Object2IntOpenHashMap<>();
+
+    public byte[] encode(OBJModel<Texture> model) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(model.getFacesByGroup().size());
+            for (Map.Entry<String, Group<Texture>> group : model.getFacesByGroup().entrySet()) {
+                out.writeUTF(group.getKey());
+                out.writeInt(group.getValue().getFaces().size());
+                for (Polygon<Texture> face : group.getValue().getFaces()) {
+                    out.writeInt(getTextureId(face.getTexture()));
+                    out.writeInt(face.getPoints().size());
+                    for (Vertex v : face.getPoints()) {
+                        writeVec(out, v.position());
+                        writeVec(out, v.normal());
+                        out.writeDouble(v.uv().u());
+                        out.writeDouble(v.uv().v());
+                    }
+                }
+            }
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+        return bytes.toByteArray();
+    }
+
+    public OBJModel<Texture> decode(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(source);
+        final int numGroups = in.readInt();
+        Map<String, Group<Texture>> groups = new LinkedHashMap<>();
+        for (int groupId = 0; groupId < numGroups; ++groupId) {
+            final String name = in.readUTF();
+            final int numFaces = in.readInt();
+            List<Polygon<Texture>> faces = new ArrayList<>(numFaces);
+            for (int faceId = 0; faceId < numFaces; ++faceId) {
+                final Texture texture = getTexture(in.readInt());
+                final int numVertices = in.readInt();
+                List<Vertex> vertices = new ArrayList<>(numVertices);
+                for (int vertexId = 0; vertexId < numVertices; ++vertexId) {
+                    vertices.add(new Vertex(readVec(in), readVec(in), new UVCoords(in.readDouble(), in.readDouble())));
+                }
+                faces.add(new Polygon<>(vertices, texture));
+            }
+            groups.put(name, new Group<>(faces));
+        }
+        return new OBJModel<>(groups);
+    }
+
+    private synchronized int getTextureId(Texture texture) {
+        return textureIds.computeIfAbsent(texture, (Texture tex) -> {
+            textures.add(tex);
+            return textures.size() - 1;
+        });
+    }
+
+    private synchronized Texture getTexture(int id) {
+        return textures.get(id);
+    }
+
+    private static void writeVec(DataOutputStream out, Vec3d vec) throws IOException {
+        out.writeDouble(vec.x());
+        out.writeDouble(vec.y());
+        out.writeDouble(vec.z());
+    }
+
+    private static Vec3d readVec(DataInputStream in) throws IOException {
+        return new Vec3d(in.readDouble(), in.readDouble(), in.readDouble());
+    }
+}
@@ -0,0 +1,388 @@
+package malte0811.modelsplitter.model;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import malte0811.modelsplitter.math.EpsilonMath;
+import malte0811.modelsplitter.math.Vec3d;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+// Simplifies models by repeatedly collapsing the edge with the lowest quadric error into one of its end points. Vertices
+// matching the fixed predicate are never moved, and collapses that would move a vertex on a UV seam, a texture border or
+// an open edge of the mesh are skipped, so the outline and texturing of the model stay intact.
+public class EdgeCollapseDecimator {
+    private static final EpsilonMath EPS_MATH = new EpsilonMath(1e-5);
+    // Minimum cosine between a triangle's normal before and after a collapse
+    private static final double MIN_NORMAL_COS = 0.2;
+
+    private final Predicate<Vec3d> isFixed;
+
+    public EdgeCollapseDecimator(Predicate<Vec3d> isFixed) {
+        this.isFixed = isFixed;
+    }
+
+    // Split parts are translated so that their cell covers [0, 1]^3
+    public static Predicate<Vec3d> unitCellBoundary() {
+        return pos -> {
+            for (int axis = 0; axis < 3; ++axis) {
+                final double coord = pos.get(axis);
+                if (EPS_MATH.sign(coord) != EpsilonMath.Sign.POSITIVE) {
+                    return true;
+                } else if (EPS_MATH.sign(coord - 1) != EpsilonMath.Sign.NEGATIVE) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Reduces the model to at most faceBudget faces if possible. The result consists of (degenerate) quads with one
+     * triangle each, as produced by OBJModel.quadify. If the budget cannot be reached without moving fixed or seam
+     * vertices, the model is simplified as far as possible.
+     */
+    public <Texture> OBJModel<Texture> decimate(OBJModel<Texture> model, int faceBudget) {
+        if (model.getFaces().size() <= faceBudget) {
+            return model;
+        }
+        Mesh<Texture> mesh = new Mesh<>(model, isFixed);
+        mesh.collapseUntil(faceBudget);
+        // Each remaining triangle becomes one face, which may be more than the quads we started with
+        if (mesh.liveTriangles >= model.getFaces().size()) {
+            return model;
+        }
+        return mesh.toModel().quadify();
+    }
+
+    private static class Triangle<Texture> {
+        private final String group;
+        private final Texture texture;
+        private final int[] vertices;
+        private final Vertex[] corners;
+        private boolean removed = false;
+
+        private Triangle(String group, Texture texture, int[] vertices, Vertex[] corners) {
+            this.group = group;
+            this.texture = texture;
+            this.vertices = vertices;
+            this.corners = corners;
+        }
+
+        private int indexOf(int vertex) {
+            for (int i = 0; i < 3; ++i) {
+                if (vertices[i] == vertex) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean contains(int vertex) {
+            return indexOf(vertex) >= 0;
+        }
+    }
+
+    private record Collapse(int from, int to, double cost, int fromVersion, int toVersion) {}
+
+    private static class Mesh<Texture> {
+        private final List<Vec3d> positions = new ArrayList<>();
+        private final List<double[]> quadrics = new ArrayList<>();
+        private final List<IntList> vertexTriangles = new ArrayList<>();
+        private final IntList versions = new IntArrayList();
+        private final BitSet fixed = new BitSet();
+        private final BitSet dead = new BitSet();
+        private final List<Triangle<Texture>> triangles = new ArrayList<>();
+        private final PriorityQueue<Collapse> candidates = new PriorityQueue<>(Comparator.comparingDouble(Collapse::cost));
+        private int liveTriangles;
+
+        private Mesh(OBJModel<Texture> model, Predicate<Vec3d> isFixed) {
+            Object2IntMap<Vec3d> vertexIds = new Object2IntOpenHashMap<>();
+            for (Map.Entry<String, Group<Texture>> group : model.getFacesByGroup().entrySet()) {
+                for (Polygon<Texture> face : group.getValue().getFaces()) {
+                    final List<Vertex> points = face.getPoints();
+                    for (int i = 1; i + 1 < points.size(); ++i) {
+                        Vertex[] corners = {points.get(0), points.get(i), points.get(i + 1)};
+                        if (triangleNormal(corners[0].position(), corners[1].position(), corners[2].position()) == null) {
+                            continue;
+                        }
+                        int[] vertices = new int[3];
+                        for (int corner = 0; corner < 3; ++corner) {
+                            vertices[corner] = vertexIds.computeIfAbsent(corners[corner].position(), (Vec3d pos) -> {
+                                final int id = positions.size();
+                                positions.add(pos);
+                                quadrics.add(new double[10]);
+                                vertexTriangles.add(new IntArrayList());
+                                versions.add(0);
+                                fixed.set(id, isFixed.test(pos));
+                                return id;
+                            });
+                        }
+                        addTriangle(new Triangle<>(group.getKey(), face.getTexture(), vertices, corners));
+                    }
+                }
+            }
+            liveTriangles = triangles.size();
+            for (int vertex = 0; vertex < positions.size(); ++vertex) {
+                addCandidates(vertex);
+            }
+        }
+
+        private void addTriangle(Triangle<Texture> triangle) {
+            final int id = triangles.size();
+            triangles.add(triangle);
+            Vec3d a = positions.get(triangle.vertices[0]);
+            Vec3d b = positions.get(triangle.vertices[1]);
+            Vec3d c = positions.get(triangle.vertices[2]);
+            Vec3d cross = b.subtract(a).crossProduct(c.subtract(a));
+            final double area = cross.length() / 2;
+            Vec3d normal = cross.scale(1 / cross.length());
+            final double d = -normal.dotProduct(a);
+            final double[] plane = {normal.x(), normal.y(), normal.z(), d};
+            for (int vertex : triangle.vertices) {
+                vertexTriangles.get(vertex).add(id);
+                double[] quadric = quadrics.get(vertex);
+                int index = 0;
+                for (int i = 0; i < 4; ++i) {
+                    for (int j = i; j < 4; ++j) {
+                        quadric[index++] += area * plane[i] * plane[j];
+                    }
+                }
+            }
+        }
+
+        private void collapseUntil(int targetTriangles) {
+            while (liveTriangles > targetTriangles && !candidates.isEmpty()) {
+                Collapse next = candidates.poll();
+                Vertex targetCorner = getTargetCorner(next);
+                if (targetCorner != null) {
+                    collapse(next.from(), next.to(), targetCorner);
+                }
+            }
+        }
+
+        private void addCandidates(int vertex) {
+            for (int triangleId : vertexTriangles.get(vertex)) {
+                Triangle<Texture> triangle = triangles.get(triangleId);
+                if (triangle.removed) {
+                    continue;
+                }
+                for (int other : triangle.vertices) {
+                    if (other != vertex) {
+                        addCandidate(vertex, other);
+                        addCandidate(other, vertex);
+                    }
+                }
+            }
+        }
+
+        private void addCandidate(int from, int to) {
+            if (fixed.get(from)) {
+                return;
+            }
+            double[] combined = quadrics.get(from).clone();
+            double[] toQuadric = quadrics.get(to);
+            for (int i = 0; i < combined.length; ++i) {
+                combined[i] += toQuadric[i];
+            }
+            Vec3d pos = positions.get(to);
+            final double[] homogenous = {pos.x(), pos.y(), pos.z(), 1};
+            double cost = 0;
+            int index = 0;
+            for (int i = 0; i < 4; ++i) {
+                for (int j = i; j < 4; ++j) {
+                    cost += (i == j ? 1 : 2) * combined[index++] * homogenous[i] * homogenous[j];
+                }
+            }
+            candidates.add(new Collapse(from, to, cost, versions.getInt(from), versions.getInt(to)));
+        }
+
+        // Returns the corner to use for "to" in the triangles that previously used "from", or null if the collapse is
+        // not (or no longer) valid
+        @Nullable
+        private Vertex getTargetCorner(Collapse collapse) {
+            final int from = collapse.from();
+            final int to = collapse.to();
+            if (dead.get(from) || dead.get(to)
+                    || versions.getInt(from) != collapse.fromVersion() || versions.getInt(to) != collapse.toVersion()) {
+                return null;
+            }
+            List<Triangle<Texture>> fromTriangles = getLiveTriangles(from);
+            Vertex fromCorner = null;
+            Vertex toCorner = null;
+            int sharedTriangles = 0;
+            for (Triangle<Texture> triangle : fromTriangles) {
+                // All triangles around the moving vertex need to agree on its texture and attributes
+                if (!Objects.equals(triangle.texture, fromTriangles.get(0).texture)) {
+                    return null;
+                }
+                Vertex corner = triangle.corners[triangle.indexOf(from)];
+                if (fromCorner == null) {
+                    fromCorner = corner;
+                } else if (!fromCorner.equals(corner)) {
+                    return null;
+                }
+                if (triangle.contains(to)) {
+                    ++sharedTriangles;
+                    Vertex cornerAtTarget = triangle.corners[triangle.indexOf(to)];
+                    if (toCorner == null) {
+                        toCorner = cornerAtTarget;
+                    } else if (!toCorner.equals(cornerAtTarget)) {
+                        return null;
+                    }
+                }
+                // Vertices on open or non-manifold edges are part of the outline
+                for (int other : triangle.vertices) {
+                    if (other != from && countSharedTriangles(fromTriangles, other) != 2) {
+                        return null;
+                    }
+                }
+            }
+            if (sharedTriangles != 2 || countCommonNeighbors(fromTriangles, from, to) != 2) {
+                return null;
+            }
+            Vec3d target = positions.get(to);
+            for (Triangle<Texture> triangle : fromTriangles) {
+                if (triangle.contains(to)) {
+                    continue;
+                }
+                Vec3d[] moved = new Vec3d[3];
+                for (int i = 0; i < 3; ++i) {
+                    moved[i] = triangle.vertices[i] == from ? target : positions.get(triangle.vertices[i]);
+                }
+                Vec3d oldNormal = triangleNormal(
+                        positions.get(triangle.vertices[0]),
+                        positions.get(triangle.vertices[1]),
+                        positions.get(triangle.vertices[2])
+                );
+                Vec3d newNormal = triangleNormal(moved[0], moved[1], moved[2]);
+                if (oldNormal == null || newNormal == null || oldNormal.dotProduct(newNormal) < MIN_NORMAL_COS) {
+                    return null;
+                }
+                if (hasTriangleWith(to, triangle.vertices, from)) {
+                    return null;
+                }
+            }
+            return toCorner;
+        }
+
+        private void collapse(int from, int to, Vertex toCorner) {
+            for (int triangleId : vertexTriangles.get(from)) {
+                Triangle<Texture> triangle = triangles.get(triangleId);
+                if (triangle.removed) {
+                    continue;
+                }
+                if (triangle.contains(to)) {
+                    triangle.removed = true;
+                    --liveTriangles;
+                } else {
+                    final int index = triangle.indexOf(from);
+                    triangle.vertices[index] = to;
+                    triangle.corners[index] = toCorner;
+                    vertexTriangles.get(to).add(triangleId);
+                }
+            }
+            double[] fromQuadric = quadrics.get(from);
+            double[] toQuadric = quadrics.get(to);
+            for (int i = 0; i < toQuadric.length; ++i) {
+                toQuadric[i] += fromQuadric[i];
+            }
+            dead.set(from);
+            versions.set(to, versions.getInt(to) + 1);
+            addCandidates(to);
+        }
+
+        private List<Triangle<Texture>> getLiveTriangles(int vertex) {
+            List<Triangle<Texture>> result = new ArrayList<>();
+            for (int triangleId : vertexTriangles.get(vertex)) {
+                Triangle<Texture> triangle = triangles.get(triangleId);
+                if (!triangle.removed) {
+                    result.add(triangle);
+                }
+            }
+            return result;
+        }
+
+        private static <Texture> int countSharedTriangles(List<Triangle<Texture>> triangles, int vertex) {
+            int result = 0;
+            for (Triangle<Texture> triangle : triangles) {
+                if (triangle.contains(vertex)) {
+                    ++result;
+                }
+            }
+            return result;
+        }
+
+        private int countCommonNeighbors(List<Triangle<Texture>> fromTriangles, int from, int to) {
+            IntList fromNeighbors = new IntArrayList();
+            for (Triangle<Texture> triangle : fromTriangles) {
+                for (int vertex : triangle.vertices) {
+                    if (vertex != from && vertex != to && !fromNeighbors.contains(vertex)) {
+                        fromNeighbors.add(vertex);
+                    }
+                }
+            }
+            IntList common = new IntArrayList();
+            for (Triangle<Texture> triangle : getLiveTriangles(to)) {
+                for (int vertex : triangle.vertices) {
+                    if (fromNeighbors.contains(vertex) && !common.contains(vertex)) {
+                        common.add(vertex);
+                    }
+                }
+            }
+            return common.size();
+        }
+
+        // Checks whether the target vertex already has a triangle using the other two vertices of the given triangle
+        private boolean hasTriangleWith(int to, int[] vertices, int replaced) {
+            for (Triangle<Texture> triangle : getLiveTriangles(to)) {
+                boolean matches = true;
+                for (int vertex : vertices) {
+                    if (vertex != replaced && !triangle.contains(vertex)) {
+                        matches = false;
+                        break;
+                    }
+                }
+                if (matches) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private OBJModel<Texture> toModel() {
+            Map<String, List<Polygon<Texture>>> faces = new HashMap<>();
+            for (Triangle<Texture> triangle : triangles) {
+                if (!triangle.removed) {
+                    faces.computeIfAbsent(triangle.group, s -> new ArrayList<>())
+                            .add(new Polygon<>(List.of(triangle.corners), triangle.texture));
+                }
+            }
+            Map<String, Group<Texture>> groups = new HashMap<>();
+            for (Map.Entry<String, List<Polygon<Texture>>> group : faces.entrySet()) {
+                groups.put(group.getKey(), new Group<>(group.getValue()));
+            }
+            return new OBJModel<>(groups);
+        }
+    }
+
+    @Nullable
+    private static Vec3d triangleNormal(Vec3d a, Vec3d b, Vec3d c) {
+        Vec3d cross = b.subtract(a).crossProduct(c.subtract(a));
+        final double length = cross.length();
+        if (length < 1e-10) {
+            return null;
+        }
+        return cross.scale(1 / length);
+    }
+}
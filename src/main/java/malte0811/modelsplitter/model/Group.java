@@ -37,6 +37,10 @@ public record Group<Texture>(List<Polygon<Texture>> faces) {
                 .map(e -> Pair.of(e.getKey(), new Group<>(e.getValue())));
     }
 
+    public AxisCoordinates axisCoordinates(int axis) {
+        return AxisCoordinates.of(faces, axis);
+    }
+
     public Group<Texture> merge(Group<Texture> other) {
         return new Group<>(
                 ImmutableList.<Polygon<Texture>>builder()
@@ -0,0 +1,114 @@
+package malte0811.modelsplitter.model;
+
+import com.google.common.collect.ImmutableList;
+import malte0811.modelsplitter.math.Vec3d;
+
+import javax.annotation.Nullable;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+// Records transformations of a model without applying them. Translations commute with all face operations, so they are
+// accumulated into a single offset. When the model is materialized or written, each face is passed through all face
+// operations in order, and the offset is applied to the vertices by the last operation.
+public class LazyOBJModel<Texture> {
+    private final OBJModel<Texture> base;
+    private final Vec3d offset;
+    private final List<FaceOperation> operations;
+
+    LazyOBJModel(OBJModel<Texture> base) {
+        this(base, Vec3d.ZERO, ImmutableList.of());
+    }
+
+    private LazyOBJModel(OBJModel<Texture> base, Vec3d offset, List<FaceOperation> operations) {
+        this.base = base;
+        this.offset = offset;
+        this.operations = operations;
+    }
+
+    public LazyOBJModel<Texture> translate(int axis, double amount) {
+        double[] offsetData = new double[3];
+        offsetData[axis] = amount;
+        return translate(new Vec3d(offsetData));
+    }
+
+    public LazyOBJModel<Texture> translate(Vec3d offset) {
+        return new LazyOBJModel<>(base, this.offset.add(offset), operations);
+    }
+
+    public LazyOBJModel<Texture> quadify() {
+        return withOperation(FaceOperation.QUADIFY);
+    }
+
+    public LazyOBJModel<Texture> recomputeZeroNormals() {
+        return withOperation(FaceOperation.RECOMPUTE_ZERO_NORMALS);
+    }
+
+    public OBJModel<Texture> materialize() {
+        if (operations.isEmpty() && offset.equals(Vec3d.ZERO)) {
+            return base;
+        }
+        Map<String, Group<Texture>> groups = new HashMap<>();
+        for (Map.Entry<String, List<Polygon<Texture>>> group : applyToGroups().entrySet()) {
+            groups.put(group.getKey(), new Group<>(group.getValue()));
+        }
+        return new OBJModel<>(groups);
+    }
+
+    public void write(OutputStream out) {
+        OBJModel.write(out, applyToGroups());
+    }
+
+    private LazyOBJModel<Texture> withOperation(FaceOperation operation) {
+        // Both operations are idempotent
+        if (!operations.isEmpty() && operations.get(operations.size() - 1) == operation) {
+            return this;
+        }
+        return new LazyOBJModel<>(
+                base, offset, ImmutableList.<FaceOperation>builder().addAll(operations).add(operation).build()
+        );
+    }
+
+    private Map<String, List<Polygon<Texture>>> applyToGroups() {
+        final UnaryOperator<Vertex> vertexMap = offset.equals(Vec3d.ZERO) ? null : v -> v.translate(offset);
+        Map<String, List<Polygon<Texture>>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Group<Texture>> group : base.getFacesByGroup().entrySet()) {
+            List<Polygon<Texture>> faces = new ArrayList<>(group.getValue().getFaces().size());
+            for (Polygon<Texture> face : group.getValue().getFaces()) {
+                apply(face, 0, vertexMap, faces);
+            }
+            result.put(group.getKey(), faces);
+        }
+        return result;
+    }
+
+    // The vertex map is applied by the last operation, so each output face is only created once
+    private void apply(
+            Polygon<Texture> face, int index, @Nullable UnaryOperator<Vertex> vertexMap, List<Polygon<Texture>> out
+    ) {
+        if (index == operations.size()) {
+            out.add(vertexMap == null ? face : face.mapVertices(vertexMap, false));
+            return;
+        }
+        final boolean last = index == operations.size() - 1;
+        final UnaryOperator<Vertex> mapHere = last ? vertexMap : null;
+        final UnaryOperator<Vertex> mapLater = last ? null : vertexMap;
+        switch (operations.get(index)) {
+            case QUADIFY -> {
+                for (Polygon<Texture> quad : face.quadify(mapHere)) {
+                    apply(quad, index + 1, mapLater, out);
+                }
+            }
+            case RECOMPUTE_ZERO_NORMALS -> apply(face.recomputeZeroNormals(mapHere), index + 1, mapLater, out);
+        }
+    }
+
+    private enum FaceOperation {
+        QUADIFY,
+        RECOMPUTE_ZERO_NORMALS,
+    }
+}
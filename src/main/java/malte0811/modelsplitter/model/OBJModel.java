@@ -6,6 +6,7 @@ import com.google.common.collect.ImmutableMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import malte0811.modelsplitter.math.EpsilonMath;
+import malte0811.modelsplitter.math.HorizontalTransform;
 import malte0811.modelsplitter.math.Plane;
 import malte0811.modelsplitter.math.Vec3d;
 import malte0811.modelsplitter.model.MaterialLibrary.OBJMaterial;
@@ -47,6 +48,16 @@ public class OBJModel<Texture> {
     }
 
     public static OBJModel<OBJMaterial> readFromStream(InputStream source, Function<String, InputStream> getMTLInput) {
+        return readWithMaterials(source, name -> readMaterialLibrary(getMTLInput.apply(name)));
+    }
+
+    public static MaterialLibrary readMaterialLibrary(InputStream source) {
+        return MaterialLibrary.parse(getRelevantLines(source));
+    }
+
+    public static OBJModel<OBJMaterial> readWithMaterials(
+            InputStream source, Function<String, MaterialLibrary> getMaterials
+    ) {
         record ParserVertex(int pos, int normal, int uv) {}
         record ParserFace(List<ParserVertex> vertices, OBJMaterial material) {}
         List<Vec3d> points = new ArrayList<>();
@@ -60,9 +71,7 @@ public class OBJModel<Texture> {
             StringTokenizer tokenizer = p.getValue();
             switch (p.getKey()) {
                 case "mtllib" -> {
-                    var mtlInput = getMTLInput.apply(tokenizer.nextToken());
-                    var mtl = MaterialLibrary.parse(getRelevantLines(mtlInput));
-                    currentMTL.setValue(mtl);
+                    currentMTL.setValue(getMaterials.apply(tokenizer.nextToken()));
                 }
                 case "v" -> points.add(new Vec3d(readTokens(tokenizer, 3)));
                 case "vn" -> normals.add(new Vec3d(readTokens(tokenizer, 3)));
@@ -158,12 +167,20 @@ public class OBJModel<Texture> {
     }
 
     public void write(OutputStream outRaw) {
+        Map<String, List<Polygon<Texture>>> faceLists = new LinkedHashMap<>();
+        for (Map.Entry<String, Group<Texture>> group : faces.entrySet()) {
+            faceLists.put(group.getKey(), group.getValue().getFaces());
+        }
+        write(outRaw, faceLists);
+    }
+
+    static <Texture> void write(OutputStream outRaw, Map<String, List<Polygon<Texture>>> faces) {
         PrintStream out = new PrintStream(outRaw);
         Object2IntMap<Vec3d> points = new Object2IntOpenHashMap<>();
         Object2IntMap<UVCoords> uvs = new Object2IntOpenHashMap<>();
-        for (Map.Entry<String, Group<Texture>> group : faces.entrySet()) {
+        for (Map.Entry<String, List<Polygon<Texture>>> group : faces.entrySet()) {
             out.println("o " + group.getKey());
-            for (Polygon<Texture> f : group.getValue().getFaces()) {
+            for (Polygon<Texture> f : group.getValue()) {
                 StringJoiner line = new StringJoiner(" ", "f ", "");
                 for (Vertex v : f.getPoints()) {
                     final int vIndex = points.computeIfAbsent(v.position(), (Vec3d pos) -> {
@@ -193,27 +210,38 @@ public class OBJModel<Texture> {
         return faces;
     }
 
-    private OBJModel<Texture> mapGroups(UnaryOperator<Group<Texture>> map) {
-        Map<String, Group<Texture>> translatedGroups = new HashMap<>();
-        for (Map.Entry<String, Group<Texture>> p : faces.entrySet()) {
-            translatedGroups.put(p.getKey(), map.apply(p.getValue()));
+    public OBJModel<Texture> transform(HorizontalTransform transform) {
+        UnaryOperator<Vertex> transformVertex = v -> new Vertex(
+                transform.applyInCell(v.position()), transform.apply(v.normal()), v.uv()
+        );
+        Map<String, Group<Texture>> transformedGroups = new HashMap<>();
+        for (Map.Entry<String, Group<Texture>> group : faces.entrySet()) {
+            List<Polygon<Texture>> transformedFaces = new ArrayList<>(group.getValue().getFaces().size());
+            for (Polygon<Texture> face : group.getValue().getFaces()) {
+                transformedFaces.add(face.mapVertices(transformVertex, transform.flipsWinding()));
+            }
+            transformedGroups.put(group.getKey(), new Group<>(transformedFaces));
         }
-        return new OBJModel<>(translatedGroups);
+        return new OBJModel<>(transformedGroups);
+    }
+
+    public LazyOBJModel<Texture> lazy() {
+        return new LazyOBJModel<>(this);
     }
 
     public OBJModel<Texture> translate(int axis, double amount) {
-        return mapGroups(g -> g.translate(axis, amount));
+        return lazy().translate(axis, amount).materialize();
     }
 
     public OBJModel<Texture> translate(Vec3d offset) {
-        return mapGroups(g -> g.translate(offset));
+        return lazy().translate(offset).materialize();
     }
 
     public OBJModel<Texture> quadify() {
-        return mapGroups(Group::quadify);
+        return lazy().quadify().materialize();
     }
 
     public OBJModel<Texture> recomputeZeroNormals() {
-        return mapGroups(Group::recomputeZeroNormals);
+        return lazy().recomputeZeroNormals().materialize();
     }
 }
@@ -7,9 +7,12 @@ import malte0811.modelsplitter.math.Plane;
 import malte0811.modelsplitter.math.Vec3d;
 import malte0811.modelsplitter.util.CyclicListWrapper;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 public class Polygon<Texture> {
     private static final EpsilonMath EPS_MATH = new EpsilonMath(1e-5);
@@ -110,7 +113,25 @@ public class Polygon<Texture> {
         return new Polygon<>(translatedVertices, texture);
     }
 
+    public Polygon<Texture> mapVertices(UnaryOperator<Vertex> map, boolean reverseWinding) {
+        List<Vertex> mappedVertices = new ArrayList<>(points.size());
+        for (Vertex v : points) {
+            mappedVertices.add(map.apply(v));
+        }
+        if (reverseWinding) {
+            // Keep the first vertex in place
+            Collections.reverse(mappedVertices.subList(1, mappedVertices.size()));
+        }
+        return new Polygon<>(mappedVertices, texture);
+    }
+
     public List<Polygon<Texture>> quadify() {
+        return quadify(null);
+    }
+
+    // vertexMap is applied to the vertices of the resulting quads, without creating intermediate polygons
+    public List<Polygon<Texture>> quadify(@Nullable UnaryOperator<Vertex> vertexMap) {
+        final List<Vertex> points = applyVertexMap(this.points, vertexMap);
         List<Polygon<Texture>> quads = new ArrayList<>();
         int secondVertex = 1;
         while (secondVertex + 2 < points.size()) {
@@ -134,6 +155,11 @@ public class Polygon<Texture> {
     }
 
     public Polygon<Texture> recomputeZeroNormals() {
+        return recomputeZeroNormals(null);
+    }
+
+    // vertexMap is applied to the vertices of the result, without creating an intermediate polygon
+    public Polygon<Texture> recomputeZeroNormals(@Nullable UnaryOperator<Vertex> vertexMap) {
         Vec3d computedNormal = null;
         List<Vertex> resultVertices = null;
         for (int i = 0; i < points.size(); ++i) {
@@ -151,10 +177,23 @@ public class Polygon<Texture> {
                 resultVertices.set(i, point);
             }
         }
-        if (resultVertices == null) {
+        if (resultVertices == null && vertexMap == null) {
             return this;
         } else {
-            return new Polygon<>(resultVertices, getTexture());
+            return new Polygon<>(
+                    applyVertexMap(resultVertices != null ? resultVertices : points, vertexMap), getTexture()
+            );
+        }
+    }
+
+    private static List<Vertex> applyVertexMap(List<Vertex> vertices, @Nullable UnaryOperator<Vertex> vertexMap) {
+        if (vertexMap == null) {
+            return vertices;
+        }
+        List<Vertex> result = new ArrayList<>(vertices.size());
+        for (Vertex v : vertices) {
+            result.add(vertexMap.apply(v));
         }
+        return result;
     }
 }
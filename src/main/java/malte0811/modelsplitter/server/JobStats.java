@@ -0,0 +1,30 @@
+package malte0811.modelsplitter.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class JobStats {
+    private final long startNanos = System.nanoTime();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long durationNanos, boolean success) {
+        (success ? completed : failed).increment();
+        totalNanos.add(durationNanos);
+        maxNanos.accumulateAndGet(durationNanos, Math::max);
+    }
+
+    public String format(ModelCache cache) {
+        final long jobs = completed.sum() + failed.sum();
+        final double uptimeSeconds = (System.nanoTime() - startNanos) / 1e9;
+        final double meanMillis = jobs > 0 ? totalNanos.sum() / 1e6 / jobs : 0;
+        return String.format(
+                "jobs %d\nfailed %d\nmean_latency_ms %.3f\nmax_latency_ms %.3f\nthroughput_per_s %.3f\n"
+                        + "cache_hits %d\ncache_misses %d\n",
+                jobs, failed.sum(), meanMillis, maxNanos.get() / 1e6, jobs / uptimeSeconds,
+                cache.getHits(), cache.getMisses()
+        );
+    }
+}
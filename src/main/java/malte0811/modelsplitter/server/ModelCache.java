@@ -0,0 +1,167 @@
+package malte0811.modelsplitter.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import malte0811.modelsplitter.model.MaterialLibrary;
+import malte0811.modelsplitter.model.MaterialLibrary.OBJMaterial;
+import malte0811.modelsplitter.model.OBJModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Parsed models and material libraries, keyed by absolute path. Entries are reused as long as the modification times of
+// the file and (for models) all material libraries it references are unchanged. Models are evicted in LRU order once
+// the total face count exceeds the limit, stale entries are dropped as soon as they are seen.
+public class ModelCache {
+    public static final long DEFAULT_MAX_FACES = 4_000_000;
+    private static final int MAX_MATERIAL_LIBRARIES = 256;
+    private static final int MAX_DEPENDENCY_ENTRIES = 4096;
+
+    private final Cache<Path, CachedModel> models;
+    private final Cache<Path, CachedMaterials> materials = CacheBuilder.newBuilder()
+            .maximumSize(MAX_MATERIAL_LIBRARIES)
+            .build();
+    // Material libraries requested by the last parse of each model, also recorded if that parse failed
+    private final Cache<Path, Set<Path>> requestedMaterials = CacheBuilder.newBuilder()
+            .maximumSize(MAX_DEPENDENCY_ENTRIES)
+            .build();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ModelCache() {
+        this(DEFAULT_MAX_FACES);
+    }
+
+    public ModelCache(long maxFaces) {
+        this.models = CacheBuilder.newBuilder()
+                .maximumWeight(maxFaces)
+                .<Path, CachedModel>weigher((path, cached) -> cached.model().getFaces().size())
+                .build();
+    }
+
+    public OBJModel<OBJMaterial> getModel(Path file) throws IOException {
+        final Path path = normalize(file);
+        CachedModel cached = models.getIfPresent(path);
+        if (cached != null) {
+            if (cached.isUpToDate()) {
+                hits.increment();
+                return cached.model();
+            }
+            models.invalidate(path);
+        }
+        misses.increment();
+        List<FileVersion> dependencies = new ArrayList<>();
+        Set<Path> requested = new HashSet<>();
+        final OBJModel<OBJMaterial> model;
+        try (InputStream in = Files.newInputStream(path)) {
+            dependencies.add(FileVersion.of(path));
+            model = OBJModel.readWithMaterials(in, name -> {
+                final Path mtlPath = path.resolveSibling(name).normalize();
+                requested.add(mtlPath);
+                try {
+                    dependencies.add(FileVersion.of(mtlPath));
+                    return getMaterials(mtlPath);
+                } catch (IOException x) {
+                    throw new UncheckedIOException(x);
+                }
+            });
+        } catch (UncheckedIOException x) {
+            throw x.getCause();
+        } finally {
+            requestedMaterials.put(path, Set.copyOf(requested));
+        }
+        models.put(path, new CachedModel(model, List.copyOf(dependencies)));
+        return model;
+    }
+
+    public MaterialLibrary getMaterials(Path file) throws IOException {
+        final Path path = normalize(file);
+        CachedMaterials cached = materials.getIfPresent(path);
+        if (cached != null) {
+            if (cached.version().isUpToDate()) {
+                hits.increment();
+                return cached.materials();
+            }
+            materials.invalidate(path);
+        }
+        misses.increment();
+        final FileVersion version = FileVersion.of(path);
+        final MaterialLibrary library;
+        try (InputStream in = Files.newInputStream(path)) {
+            library = OBJModel.readMaterialLibrary(in);
+        }
+        materials.put(path, new CachedMaterials(library, version));
+        return library;
+    }
+
+    // Material libraries requested by the last parse of the model, whether it succeeded or not. Empty if the model was
+    // never parsed.
+    public Set<Path> getMaterialDependencies(Path model) {
+        final Path path = normalize(model);
+        CachedModel cached = models.getIfPresent(path);
+        if (cached == null) {
+            return requestedMaterials.asMap().getOrDefault(path, Set.of());
+        }
+        Set<Path> result = new HashSet<>();
+        for (FileVersion dependency : cached.dependencies()) {
+            if (!dependency.file().equals(path)) {
+                result.add(dependency.file());
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(Path file) {
+        final Path path = normalize(file);
+        models.invalidate(path);
+        materials.invalidate(path);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    private record FileVersion(Path file, FileTime lastModified) {
+        public static FileVersion of(Path file) throws IOException {
+            return new FileVersion(file, Files.getLastModifiedTime(file));
+        }
+
+        public boolean isUpToDate() {
+            try {
+                return Files.getLastModifiedTime(file).equals(lastModified);
+            } catch (IOException x) {
+                return false;
+            }
+        }
+    }
+
+    private record CachedModel(OBJModel<OBJMaterial> model, List<FileVersion> dependencies) {
+        public boolean isUpToDate() {
+            for (FileVersion dependency : dependencies) {
+                if (!dependency.isUpToDate()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private record CachedMaterials(MaterialLibrary materials, FileVersion version) {}
+}
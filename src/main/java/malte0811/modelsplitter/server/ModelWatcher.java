@@ -0,0 +1,235 @@
+package malte0811.modelsplitter.server;
+
+import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import malte0811.modelsplitter.model.MaterialLibrary.OBJMaterial;
+import malte0811.modelsplitter.model.OBJModel;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+// Watches directories for changed model and material files and re-runs the split job for the affected models only. The
+// results for all models are kept in memory, so unchanged models are never processed again. They are also used to
+// delete the output files of cells that no longer exist after a re-split, and of models that were deleted.
+// The directory structure below the watched roots is mirrored in the output directory. If two models would still write
+// to the same output names (foo.obj and foo.obj.ie, or the same relative path in two roots), only the first one is
+// split; the other one is split once the first one is deleted.
+public class ModelWatcher {
+    private static final long DEBOUNCE_MILLIS = 250;
+
+    private final List<Path> roots;
+    private final Path outputDir;
+    private final BiFunction<Path, Path, SplitJob> jobFactory;
+    private final ModelCache cache = new ModelCache();
+    private final Map<Path, Long2ObjectMap<OBJModel<OBJMaterial>>> results = new HashMap<>();
+    private final Map<Path, Set<Path>> modelsByMaterial = new HashMap<>();
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final Map<Path, Path> outputOwners = new HashMap<>();
+    private final Map<Path, Path> refusedModels = new HashMap<>();
+
+    // Files below outputDir are never watched, otherwise output models would be split again. The job factory receives
+    // the model and the directory its output should be written to.
+    public ModelWatcher(List<Path> roots, Path outputDir, BiFunction<Path, Path, SplitJob> jobFactory) {
+        this.roots = roots.stream().map(p -> p.toAbsolutePath().normalize()).collect(Collectors.toList());
+        this.outputDir = outputDir.toAbsolutePath().normalize();
+        this.jobFactory = jobFactory;
+        for (Path root : this.roots) {
+            Preconditions.checkArgument(
+                    !root.startsWith(this.outputDir), "Watched directory " + root + " is inside the output directory"
+            );
+        }
+    }
+
+    public static boolean isModel(Path file) {
+        final String name = file.getFileName().toString();
+        return name.endsWith(".obj") || name.endsWith(".obj.ie");
+    }
+
+    public static boolean isMaterialLibrary(Path file) {
+        return file.getFileName().toString().endsWith(".mtl");
+    }
+
+    public Map<Path, Long2ObjectMap<OBJModel<OBJMaterial>>> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    public void run() throws IOException, InterruptedException {
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            Set<Path> initialModels = new HashSet<>();
+            for (Path root : roots) {
+                registerAll(watcher, root, initialModels);
+            }
+            process(initialModels);
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = watcher.take();
+                // Editors tend to produce several events per save, collect them until things have calmed down
+                do {
+                    collectChanges(watcher, key, changed);
+                    key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                process(getAffectedModels(changed));
+            }
+        }
+    }
+
+    private void registerAll(WatchService watcher, Path root, Set<Path> modelsOut) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.startsWith(outputDir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register(
+                        watcher,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE
+                );
+                watchedDirs.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (isModel(file)) {
+                    modelsOut.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void collectChanges(WatchService watcher, WatchKey key, Set<Path> changed) throws IOException {
+        final Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, so everything has to be considered changed
+                for (Path root : roots) {
+                    registerAll(watcher, root, changed);
+                }
+                changed.addAll(modelsByMaterial.keySet());
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            final Path file = dir.resolve((Path) event.context());
+            if (file.startsWith(outputDir)) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                registerAll(watcher, file, changed);
+            } else if (isModel(file) || isMaterialLibrary(file)) {
+                changed.add(file);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    private Set<Path> getAffectedModels(Set<Path> changed) {
+        Set<Path> affected = new HashSet<>();
+        for (Path file : changed) {
+            cache.invalidate(file);
+            if (isModel(file)) {
+                affected.add(file);
+            } else if (isMaterialLibrary(file)) {
+                affected.addAll(modelsByMaterial.getOrDefault(file, Set.of()));
+            }
+        }
+        return affected;
+    }
+
+    private void process(Set<Path> models) {
+        Deque<Path> queue = new ArrayDeque<>(models);
+        while (!queue.isEmpty()) {
+            final Path model = queue.poll();
+            for (Set<Path> dependents : modelsByMaterial.values()) {
+                dependents.remove(model);
+            }
+            final SplitJob job = jobFactory.apply(model, getOutputDir(model));
+            final Path outputBase = job.getOutputBase();
+            final Long2ObjectMap<OBJModel<OBJMaterial>> previous = results.get(model);
+            if (!Files.exists(model)) {
+                results.remove(model);
+                refusedModels.remove(model);
+                if (previous != null) {
+                    try {
+                        job.deleteOutput(previous.keySet());
+                    } catch (IOException x) {
+                        System.out.println("Failed to delete output of " + model + ": " + x);
+                    }
+                }
+                if (outputOwners.remove(outputBase, model)) {
+                    refusedModels.forEach((refused, base) -> {
+                        if (base.equals(outputBase)) {
+                            queue.add(refused);
+                        }
+                    });
+                }
+                System.out.println("Removed " + model);
+                continue;
+            }
+            final Path owner = outputOwners.putIfAbsent(outputBase, model);
+            if (owner != null && !owner.equals(model)) {
+                refusedModels.put(model, outputBase);
+                System.out.println("Not splitting " + model + ", its output would overwrite the output of " + owner);
+                continue;
+            }
+            refusedModels.remove(model);
+            final long start = System.nanoTime();
+            try {
+                Long2ObjectMap<OBJModel<OBJMaterial>> parts = job.compute(cache);
+                job.write(parts);
+                if (previous != null) {
+                    job.deleteStaleParts(previous.keySet(), parts);
+                }
+                results.put(model, parts);
+                System.out.printf(
+                        "Split %s into %d parts in %.1f ms\n", model, parts.size(), (System.nanoTime() - start) / 1e6
+                );
+            } catch (Exception x) {
+                // The previous result is kept, its files are still in the output directory
+                System.out.println("Failed to split " + model + ": " + x);
+            }
+            for (Path material : cache.getMaterialDependencies(model)) {
+                modelsByMaterial.computeIfAbsent(material, p -> new HashSet<>()).add(model);
+            }
+        }
+        modelsByMaterial.values().removeIf(Set::isEmpty);
+    }
+
+    // Mirrors the location of the model relative to the innermost root containing it
+    private Path getOutputDir(Path model) {
+        Path root = null;
+        for (Path candidate : roots) {
+            if (model.startsWith(candidate) && (root == null || candidate.startsWith(root))) {
+                root = candidate;
+            }
+        }
+        Preconditions.checkState(root != null, "Model " + model + " is not inside a watched directory");
+        return outputDir.resolve(root.relativize(model.getParent()));
+    }
+}
@@ -0,0 +1,108 @@
+package malte0811.modelsplitter.server;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import malte0811.modelsplitter.ClumpedModel;
+import malte0811.modelsplitter.SplitModel;
+import malte0811.modelsplitter.archive.CellArchive;
+import malte0811.modelsplitter.math.ModelSplitterVec3i;
+import malte0811.modelsplitter.model.MaterialLibrary.OBJMaterial;
+import malte0811.modelsplitter.model.OBJModel;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Splits one model file and writes the result to outputDir, either as one OBJ file per part named
+ * {@code <model>_<x>_<y>_<z>.obj} or as a single {@code <model>.cells} archive.
+ *
+ * @param clumpTargets if not null, the split model is clumped into these parts before writing
+ */
+public record SplitJob(Path model, Path outputDir, @Nullable Set<ModelSplitterVec3i> clumpTargets, boolean archive) {
+    public static String getBaseName(Path model) {
+        final String fileName = model.getFileName().toString();
+        for (String extension : new String[]{".obj.ie", ".obj"}) {
+            if (fileName.endsWith(extension)) {
+                return fileName.substring(0, fileName.length() - extension.length());
+            }
+        }
+        return fileName;
+    }
+
+    // Returns the number of parts written
+    public int run(ModelCache cache) throws IOException {
+        Long2ObjectMap<OBJModel<OBJMaterial>> parts = compute(cache);
+        write(parts);
+        return parts.size();
+    }
+
+    public Long2ObjectMap<OBJModel<OBJMaterial>> compute(ModelCache cache) throws IOException {
+        OBJModel<OBJMaterial> input = cache.getModel(model);
+        SplitModel<OBJMaterial> split = new SplitModel<>(input);
+        if (clumpTargets != null) {
+            return new ClumpedModel<>(split, clumpTargets).getPackedClumpedParts();
+        } else {
+            return split.getPackedParts();
+        }
+    }
+
+    public void write(Long2ObjectMap<OBJModel<OBJMaterial>> parts) throws IOException {
+        Files.createDirectories(outputDir);
+        if (archive) {
+            CellArchive.write(getArchiveFile(), parts);
+        } else {
+            for (Long2ObjectMap.Entry<OBJModel<OBJMaterial>> part : parts.long2ObjectEntrySet()) {
+                final Path partFile = getPartFile(part.getLongKey());
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partFile))) {
+                    part.getValue().write(out);
+                }
+            }
+        }
+    }
+
+    // Deletes the part files of cells written by an earlier run that are not part of the new result. Archives are
+    // always replaced as a whole, so there is nothing to delete for them.
+    public void deleteStaleParts(LongSet previousCells, Long2ObjectMap<?> parts) throws IOException {
+        if (archive) {
+            return;
+        }
+        for (LongIterator it = previousCells.iterator(); it.hasNext(); ) {
+            final long cell = it.nextLong();
+            if (!parts.containsKey(cell)) {
+                Files.deleteIfExists(getPartFile(cell));
+            }
+        }
+    }
+
+    // Deletes everything written for the given cells
+    public void deleteOutput(LongSet cells) throws IOException {
+        if (archive) {
+            Files.deleteIfExists(getArchiveFile());
+            return;
+        }
+        for (LongIterator it = cells.iterator(); it.hasNext(); ) {
+            Files.deleteIfExists(getPartFile(it.nextLong()));
+        }
+    }
+
+    // All output files of this job start with this path
+    public Path getOutputBase() {
+        return outputDir.resolve(getBaseName(model));
+    }
+
+    public Path getArchiveFile() {
+        return outputDir.resolve(getBaseName(model) + ".cells");
+    }
+
+    public Path getPartFile(long cell) {
+        return outputDir.resolve(getBaseName(model) + "_" + ModelSplitterVec3i.unpackX(cell)
+                + "_" + ModelSplitterVec3i.unpackY(cell)
+                + "_" + ModelSplitterVec3i.unpackZ(cell) + ".obj");
+    }
+}
@@ -0,0 +1,187 @@
+package malte0811.modelsplitter.server;
+
+import com.google.common.base.Preconditions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import malte0811.modelsplitter.math.ModelSplitterVec3i;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running splitter listening on localhost, so repeated invocations do not pay for JVM startup and warm-up.
+ * <ul>
+ *     <li>{@code POST /split?model=<file>&output=<dir>[&clump=x,y,z;x,y,z...][&archive=true]} runs a {@link SplitJob}
+ *     </li>
+ *     <li>{@code GET /stats} returns job latency, throughput and cache statistics</li>
+ * </ul>
+ * Every request has to carry the token generated at startup in the {@value TOKEN_HEADER} header. Requests with an
+ * {@code Origin} header are rejected, since they can only come from a browser.
+ */
+public class SplitServer {
+    public static final int DEFAULT_PORT = 27165;
+    public static final String TOKEN_HEADER = "X-Split-Token";
+
+    private final ModelCache cache = new ModelCache();
+    private final JobStats stats = new JobStats();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String token;
+
+    public SplitServer(int port, int threads) throws IOException {
+        final byte[] tokenBytes = new byte[16];
+        new SecureRandom().nextBytes(tokenBytes);
+        this.token = HexFormat.of().formatHex(tokenBytes);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/split", this::handleSplit);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    public static void main(String[] args) throws IOException {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SplitServer server = new SplitServer(port, threads);
+        server.start();
+        System.out.println("Listening on localhost:" + port);
+        System.out.println("Token: " + server.getToken());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public ModelCache getCache() {
+        return cache;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    private void handleSplit(HttpExchange exchange) throws IOException {
+        if (!checkAccess(exchange)) {
+            return;
+        }
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "Use POST\n");
+            return;
+        }
+        final long start = System.nanoTime();
+        final SplitJob job;
+        try {
+            job = parseJob(parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (RuntimeException x) {
+            respond(exchange, 400, x.getMessage() + "\n");
+            return;
+        }
+        try {
+            final int parts = job.run(cache);
+            final long duration = System.nanoTime() - start;
+            stats.record(duration, true);
+            respond(exchange, 200, String.format("parts %d\nlatency_ms %.3f\n", parts, duration / 1e6));
+        } catch (Exception x) {
+            stats.record(System.nanoTime() - start, false);
+            respond(exchange, 500, x + "\n");
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        if (!checkAccess(exchange)) {
+            return;
+        }
+        respond(exchange, 200, stats.format(cache));
+    }
+
+    private boolean checkAccess(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            respond(exchange, 403, "Cross-origin requests are not allowed\n");
+            return false;
+        }
+        final String providedToken = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+        if (providedToken == null || !MessageDigest.isEqual(
+                providedToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8)
+        )) {
+            respond(exchange, 403, "Missing or invalid " + TOKEN_HEADER + " header\n");
+            return false;
+        }
+        return true;
+    }
+
+    private static SplitJob parseJob(Map<String, String> params) {
+        final String model = params.get("model");
+        final String output = params.get("output");
+        Preconditions.checkArgument(model != null, "Missing parameter: model");
+        Preconditions.checkArgument(output != null, "Missing parameter: output");
+        Set<ModelSplitterVec3i> clumpTargets = null;
+        if (params.containsKey("clump")) {
+            clumpTargets = new HashSet<>();
+            for (String target : params.get("clump").split(";")) {
+                String[] coords = target.split(",");
+                Preconditions.checkArgument(coords.length == 3, "Invalid clump target: " + target);
+                ModelSplitterVec3i cell = new ModelSplitterVec3i(
+                        Integer.parseInt(coords[0].trim()),
+                        Integer.parseInt(coords[1].trim()),
+                        Integer.parseInt(coords[2].trim())
+                );
+                Preconditions.checkArgument(
+                        cell.isPackable(),
+                        "Clump target %s is outside the supported range [%s, %s]",
+                        target, ModelSplitterVec3i.MIN_PACKABLE, ModelSplitterVec3i.MAX_PACKABLE
+                );
+                clumpTargets.add(cell);
+            }
+        }
+        return new SplitJob(
+                Path.of(model), Path.of(output), clumpTargets, Boolean.parseBoolean(params.get("archive"))
+        );
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String param : rawQuery.split("&")) {
+            final int separator = param.indexOf('=');
+            if (separator < 0) {
+                params.put(URLDecoder.decode(param, StandardCharsets.UTF_8), "");
+            } else {
+                params.put(
+                        URLDecoder.decode(param.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(param.substring(separator + 1), StandardCharsets.UTF_8)
+                );
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package malte0811.modelsplitter.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import malte0811.modelsplitter.math.ModelSplitterVec3i;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+public class PackedCellMap<V> extends AbstractMap<ModelSplitterVec3i, V> {
+    private final Long2ObjectMap<V> packed;
+    private final Set<Entry<ModelSplitterVec3i, V>> entrySet;
+
+    public PackedCellMap(Long2ObjectMap<V> packed) {
+        this.packed = packed;
+        this.entrySet = new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<ModelSplitterVec3i, V>> iterator() {
+                var packedIterator = packed.long2ObjectEntrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return packedIterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<ModelSplitterVec3i, V> next() {
+                        var next = packedIterator.next();
+                        return new SimpleImmutableEntry<>(new ModelSplitterVec3i(next.getLongKey()), next.getValue());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return packed.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<ModelSplitterVec3i, V>> entrySet() {
+        return entrySet;
+    }
+
+    @Override
+    public int size() {
+        return packed.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof ModelSplitterVec3i pos && pos.isPackable() && packed.containsKey(pos.pack());
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof ModelSplitterVec3i pos && pos.isPackable() ? packed.get(pos.pack()) : null;
+    }
+}